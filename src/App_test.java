@@ -6,6 +6,23 @@ import java.util.Map;
 public class App_test {
     public static void main(String[] args) {
 
+        //! Test de la maintenance en arrière-plan
+        // Opt-in : s'exécute seulement après database.maintenance.idleMs sans requête, voir les logs
+        SqliteManager.startMaintenance();
+
+        //! Test de l'abonnement aux modifications
+        // Chaque lot reçu correspond à une transaction validée par les tests ci-dessous
+        SqliteManager.ChangeListener listener = events -> {
+            for (SqliteManager.ChangeEvent event : events) {
+                if (event.isOverflow()) {
+                    System.out.println("Modification massive, resynchronisation de " + event.getTable());
+                } else {
+                    System.out.println("Modification reçue : " + event);
+                }
+            }
+        };
+        SqliteManager.subscribe(listener);
+
         //! Test de la méthode executeInsert
         // Test d'une insertion normale
         String insertQuery = "INSERT INTO employees (nom, prenom, departement) VALUES (?, ?, ?)";
@@ -85,6 +102,12 @@ public class App_test {
             System.out.println("Échec de la mise à jour du salaire");
         }
 
+        // Statistiques de contention de la dernière requête (reprises sur SQLITE_BUSY et attente)
+        SqliteManager.StatementStats stats = SqliteManager.getLastStatementStats();
+        if (stats != null) {
+            System.out.println("Contention sur la mise à jour : " + stats);
+        }
+
         // Exemple de mise à jour multiple : augmenter le salaire des employés IT
         String updateMultipleQuery = "UPDATE employees SET salaire = salaire * 1.1 WHERE departement = ?";
         resultat3 = SqliteManager.executeUpdate(updateMultipleQuery, "IT");
@@ -112,5 +135,22 @@ public class App_test {
         if (resultat3) {
             System.out.println("Suppression des employés inactifs réussie");
         }
+
+        // Laisser le temps aux derniers lots d'être diffusés avant de se désabonner
+        try {
+            Thread.sleep(500);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        SqliteManager.unsubscribe(listener);
+        SqliteManager.stopMaintenance();
+
+        // Passe de maintenance immédiate : ANALYZE, incremental_vacuum puis checkpoint du WAL
+        if (SqliteManager.runMaintenanceNow()) {
+            System.out.println("Maintenance terminée, voir les logs pour la durée et les pages récupérées");
+        } else {
+            System.out.println("Maintenance interrompue ou en échec, voir les logs");
+        }
+        System.out.println("Lots de modifications abandonnés : " + SqliteManager.getDroppedChangeBatches());
     }
 }
\ No newline at end of file
@@ -9,16 +9,38 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
+import java.sql.Statement;
 import java.sql.Types;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.sqlite.SQLiteCommitListener;
+import org.sqlite.SQLiteConnection;
+import org.sqlite.SQLiteUpdateListener;
 
 /**
  * Classe utilitaire pour gérer les connexions et opérations avec une base de données SQLite.
@@ -32,6 +54,47 @@ public class SqliteManager {
     private static String databaseUrl;
     private static Properties properties;
 
+    // Capture des modifications (CDC) : abonnés, file bornée des lots et thread de diffusion
+    private static final int DEFAULT_CDC_QUEUE_CAPACITY = 1024;
+    private static final int DEFAULT_CDC_MAX_EVENTS_PER_TRANSACTION = 10000;
+    private static int maxEventsPerTransaction = DEFAULT_CDC_MAX_EVENTS_PER_TRANSACTION;
+    private static final Map<Connection, PendingChanges> PENDING_CHANGES = Collections.synchronizedMap(new WeakHashMap<>());
+    private static final Pattern REPLACE_PATTERN = Pattern.compile("^\\s*REPLACE\\b|\\bOR\\s+REPLACE\\b",
+            Pattern.CASE_INSENSITIVE);
+    private static final Pattern TARGET_TABLE_PATTERN = Pattern.compile(
+            "^\\s*(?:DELETE\\s+FROM|UPDATE(?:\\s+OR\\s+\\w+)?|(?:INSERT(?:\\s+OR\\s+\\w+)?|REPLACE)\\s+INTO)\\s+([^\\s(]+)",
+            Pattern.CASE_INSENSITIVE);
+    private static final List<ChangeListener> CHANGE_LISTENERS = new CopyOnWriteArrayList<>();
+    private static final AtomicLong DROPPED_CHANGE_BATCHES = new AtomicLong();
+    private static BlockingQueue<List<ChangeEvent>> changeQueue;
+    private static Thread changeDispatcher;
+
+    // Gestion de la contention (SQLITE_BUSY / SQLITE_LOCKED) : délais, reprises et admission des écritures
+    private static final int SQLITE_BUSY = 5;
+    private static final int SQLITE_LOCKED = 6;
+    private static int busyTimeoutMs = 1000;
+    private static int busyMaxRetries = 5;
+    private static long busyBaseDelayMs = 20;
+    private static long busyMaxDelayMs = 1000;
+    private static long busyBudgetMs = 10000;
+    private static long contentionWindowMs = 2000;
+    private static Semaphore writePermits = new Semaphore(1, true);
+    private static volatile long contentionUntil;
+    private static final ThreadLocal<StatementStats> LAST_STATEMENT_STATS = new ThreadLocal<>();
+
+    // Maintenance en arrière-plan : suivi de l'activité des requêtes et planification
+    private static final AtomicInteger ACTIVE_STATEMENTS = new AtomicInteger();
+    private static final AtomicLong FOREGROUND_STATEMENTS = new AtomicLong();
+    private static volatile long lastForegroundActivity = System.currentTimeMillis();
+    private static long maintenanceCheckIntervalMs = 5000;
+    private static long maintenanceIdleMs = 30000;
+    private static long maintenanceMinIntervalMs = 600000;
+    private static int maintenanceVacuumPages = 100;
+    private static int maintenanceAnalysisLimit = 400;
+    private static long lastMaintenanceRun;
+    private static final Object MAINTENANCE_LOCK = new Object();
+    private static ScheduledExecutorService maintenanceScheduler;
+
     // Dans la classe Sqlite
     private static String getLogFileName() {
         LocalDateTime now = LocalDateTime.now();
@@ -146,10 +209,32 @@ public class SqliteManager {
         try (FileInputStream fis = new FileInputStream(CONFIG_FILE)) {
             properties.load(fis);
             databaseUrl = properties.getProperty("database.url", "jdbc:sqlite:db/db.db");
+            maxEventsPerTransaction = Math.max(0, getIntProperty("database.cdc.maxEventsPerTransaction",
+                    DEFAULT_CDC_MAX_EVENTS_PER_TRANSACTION));
+
+            // Paramètres de gestion de la contention
+            busyTimeoutMs = Math.max(0, getIntProperty("database.busy.timeout", busyTimeoutMs));
+            busyMaxRetries = Math.max(0, getIntProperty("database.busy.maxRetries", busyMaxRetries));
+            busyBaseDelayMs = Math.max(1, getLongProperty("database.busy.baseDelayMs", busyBaseDelayMs));
+            busyMaxDelayMs = Math.max(busyBaseDelayMs, getLongProperty("database.busy.maxDelayMs", busyMaxDelayMs));
+            busyBudgetMs = Math.max(0, getLongProperty("database.busy.budgetMs", busyBudgetMs));
+            contentionWindowMs = Math.max(0, getLongProperty("database.busy.contentionWindowMs", contentionWindowMs));
+            writePermits = new Semaphore(Math.max(1, getIntProperty("database.busy.writeConcurrency", 1)), true);
+
+            // Paramètres de la maintenance en arrière-plan
+            maintenanceCheckIntervalMs = getLongProperty("database.maintenance.checkIntervalMs", maintenanceCheckIntervalMs);
+            maintenanceIdleMs = getLongProperty("database.maintenance.idleMs", maintenanceIdleMs);
+            maintenanceMinIntervalMs = getLongProperty("database.maintenance.minIntervalMs", maintenanceMinIntervalMs);
+            maintenanceVacuumPages = getIntProperty("database.maintenance.vacuumPages", maintenanceVacuumPages);
+            maintenanceAnalysisLimit = getIntProperty("database.maintenance.analysisLimit", maintenanceAnalysisLimit);
             
             // Chargement du pilote SQLite
             Class.forName("org.sqlite.JDBC");
             writeLog("Configuration chargée avec succès. URL de la base: " + databaseUrl, Level.INFO);
+
+            if (Boolean.parseBoolean(properties.getProperty("database.maintenance.enabled", "false").trim())) {
+                startMaintenance();
+            }
         
         } catch (IOException e) {
             writeLog("Impossible de charger le fichier de configuration. Utilisation des valeurs par défaut.", Level.WARNING, e);
@@ -159,6 +244,46 @@ public class SqliteManager {
         }
     }
 
+    /**
+     * Lit une propriété entière de la configuration.
+     * 
+     * @param key La clé de la propriété
+     * @param defaultValue La valeur utilisée si la propriété est absente ou invalide
+     * @return int la valeur de la propriété
+     */
+    private static int getIntProperty(String key, int defaultValue) {
+        String value = properties.getProperty(key);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            writeLog("Valeur invalide pour " + key + ": " + value + ", utilisation de " + defaultValue, Level.WARNING);
+            return defaultValue;
+        }
+    }
+
+    /**
+     * Lit une propriété de type long de la configuration.
+     * 
+     * @param key La clé de la propriété
+     * @param defaultValue La valeur utilisée si la propriété est absente ou invalide
+     * @return long la valeur de la propriété
+     */
+    private static long getLongProperty(String key, long defaultValue) {
+        String value = properties.getProperty(key);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            writeLog("Valeur invalide pour " + key + ": " + value + ", utilisation de " + defaultValue, Level.WARNING);
+            return defaultValue;
+        }
+    }
+
     /**
      * Établit une connexion à la base de données SQLite.
      * 
@@ -168,6 +293,12 @@ public class SqliteManager {
     public static Connection connect() throws SQLException {
         try {
             Connection conn = DriverManager.getConnection(databaseUrl);
+            if (busyTimeoutMs > 0) {
+                try (Statement stmt = conn.createStatement()) {
+                    stmt.execute("PRAGMA busy_timeout = " + busyTimeoutMs);
+                }
+            }
+            attachChangeHooks(conn);
             writeLog("Connexion à SQLite établie avec succès", Level.INFO);
             return conn;
         } catch (SQLException e) {
@@ -183,6 +314,7 @@ public class SqliteManager {
      */
     public static void closeConnection(Connection conn) {
         if (conn != null) {
+            PENDING_CHANGES.remove(conn);
             try {
                 conn.close();
                 writeLog("Connexion fermée avec succès", Level.INFO);
@@ -240,7 +372,7 @@ public class SqliteManager {
             // Exécution de la requête
             writeLog( "Requête :  "+insertQuery, Level.INFO);
             writeLog("Params" + Arrays.toString(params), Level.INFO);
-            int rowsAffected = pstmt.executeUpdate();
+            int rowsAffected = executeTrackedUpdate(connection, insertQuery, pstmt);
             success = (rowsAffected > 0);
             
             if (success) {
@@ -259,6 +391,10 @@ public class SqliteManager {
                     
             // Gestion des erreurs spécifiques
             switch (e.getErrorCode()) {
+                case SQLITE_BUSY:
+                case SQLITE_LOCKED:
+                    writeLog("Base verrouillée, abandon après les tentatives de reprise", Level.WARNING);
+                    break;
                 case 19: // SQLITE_CONSTRAINT
                     writeLog("Violation de contrainte (clé primaire ou unique)", Level.WARNING);
                     break;
@@ -338,7 +474,7 @@ public class SqliteManager {
 
             writeLog( "Requête :  "+selectQuery, Level.INFO);
             writeLog("Params" + Arrays.toString(params), Level.INFO);
-            rs = pstmt.executeQuery();
+            rs = executeWithRetry(selectQuery, false, pstmt::executeQuery);
             writeLog("Requête SELECT exécutée avec succès", Level.INFO);
             return rs;
 
@@ -403,7 +539,7 @@ public class SqliteManager {
 
             writeLog( "Requête :  "+selectQuery , Level.INFO);
             writeLog("Params" + Arrays.toString(params), Level.INFO);
-            rs = pstmt.executeQuery();
+            rs = executeWithRetry(selectQuery, false, pstmt::executeQuery);
             
             ResultSetMetaData metaData = rs.getMetaData();
             int columnCount = metaData.getColumnCount();
@@ -488,7 +624,7 @@ public class SqliteManager {
 
             writeLog( "Requête :  "+updateQuery , Level.INFO);
             writeLog("Params" + Arrays.toString(params), Level.INFO);
-            int rowsAffected = pstmt.executeUpdate();
+            int rowsAffected = executeTrackedUpdate(connection, updateQuery, pstmt);
             success = (rowsAffected > 0);
 
             if (success) {
@@ -562,7 +698,7 @@ public class SqliteManager {
 
             writeLog( "Requête :  "+deleteQuery , Level.INFO);
             writeLog("Params" + Arrays.toString(params), Level.INFO);
-            int rowsAffected = pstmt.executeUpdate();
+            int rowsAffected = executeTrackedUpdate(connection, deleteQuery, pstmt);
             success = (rowsAffected > 0);
 
             if (success) {
@@ -587,4 +723,701 @@ public class SqliteManager {
 
         return success;
     }
+
+    /**
+     * Type d'opération publiée par la capture des modifications.
+     * OVERFLOW signale qu'une transaction a modifié trop de lignes d'une table pour les détailler :
+     * l'abonné doit resynchroniser toute la table.
+     */
+    public enum Operation {
+        INSERT, UPDATE, DELETE, OVERFLOW
+    }
+
+    /**
+     * Modification d'une ligne : table, opération et rowid concernés.
+     */
+    public static final class ChangeEvent {
+        private final String table;
+        private final Operation operation;
+        private final long rowId;
+
+        public ChangeEvent(String table, Operation operation, long rowId) {
+            this.table = table;
+            this.operation = operation;
+            this.rowId = rowId;
+        }
+
+        public String getTable() {
+            return table;
+        }
+
+        public Operation getOperation() {
+            return operation;
+        }
+
+        public long getRowId() {
+            return rowId;
+        }
+
+        public boolean isOverflow() {
+            return operation == Operation.OVERFLOW;
+        }
+
+        @Override
+        public String toString() {
+            if (isOverflow()) {
+                return operation + " " + table;
+            }
+            return operation + " " + table + " (rowid=" + rowId + ")";
+        }
+    }
+
+    /**
+     * Abonné aux modifications de la base de données.
+     * Reçoit un lot d'évènements par transaction validée, dans l'ordre des modifications.
+     */
+    public interface ChangeListener {
+        void onChanges(List<ChangeEvent> events);
+    }
+
+    /**
+     * Abonne un listener aux modifications (INSERT, UPDATE, DELETE) de la base.
+     * Les évènements sont collectés via les hooks update/commit de SQLite sur chaque connexion
+     * ouverte par {@link #connect()}, puis diffusés par lot après chaque commit depuis un thread dédié.
+     * Si la file est pleine, le lot est abandonné (jamais bloquant pour la requête) et journalisé.
+     * Au-delà de database.cdc.maxEventsPerTransaction lignes dans une transaction, les lignes d'une
+     * table sont remplacées par un unique évènement {@link Operation#OVERFLOW} pour cette table.
+     * 
+     * Lorsque SQLite ne détaille pas les lignes modifiées, un évènement OVERFLOW est publié pour
+     * la table : DELETE sans clause WHERE (optimisation de troncature), REPLACE / INSERT OR REPLACE
+     * (les lignes remplacées sont supprimées sans être signalées) et plus généralement toute requête
+     * exécutée par {@link #executeInsert}, {@link #executeUpdate} ou {@link #executeDelete} qui
+     * modifie plus de lignes que les hooks n'en ont reçues. Les tables WITHOUT ROWID ne sont pas signalées.
+     * 
+     * @param listener Le listener à abonner
+     * 
+     * @example
+     * SqliteManager.subscribe(events -> events.forEach(e -> cache.invalidate(e.getTable(), e.getRowId())));
+     */
+    public static void subscribe(ChangeListener listener) {
+        if (listener == null) {
+            throw new IllegalArgumentException("Le listener ne peut pas être null");
+        }
+        startChangeDispatcher();
+        CHANGE_LISTENERS.add(listener);
+        writeLog("Nouvel abonné aux modifications: " + listener, Level.INFO);
+    }
+
+    /**
+     * Désabonne un listener précédemment abonné avec {@link #subscribe(ChangeListener)}.
+     * 
+     * @param listener Le listener à désabonner
+     */
+    public static void unsubscribe(ChangeListener listener) {
+        if (CHANGE_LISTENERS.remove(listener)) {
+            writeLog("Abonné aux modifications retiré: " + listener, Level.INFO);
+        }
+    }
+
+    /**
+     * Retourne le nombre de lots de modifications abandonnés faute de place dans la file.
+     * 
+     * @return long le nombre de lots abandonnés depuis le démarrage
+     */
+    public static long getDroppedChangeBatches() {
+        return DROPPED_CHANGE_BATCHES.get();
+    }
+
+    /**
+     * Démarre le thread de diffusion des modifications s'il n'est pas déjà lancé.
+     * La capacité de la file est lue depuis la propriété database.cdc.queueCapacity.
+     */
+    private static synchronized void startChangeDispatcher() {
+        if (changeDispatcher != null) {
+            return;
+        }
+        int capacity = getIntProperty("database.cdc.queueCapacity", DEFAULT_CDC_QUEUE_CAPACITY);
+        changeQueue = new ArrayBlockingQueue<>(Math.max(1, capacity));
+
+        changeDispatcher = new Thread(() -> {
+            while (!Thread.currentThread().isInterrupted()) {
+                List<ChangeEvent> batch;
+                try {
+                    batch = changeQueue.take();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+                for (ChangeListener listener : CHANGE_LISTENERS) {
+                    try {
+                        listener.onChanges(batch);
+                    } catch (RuntimeException e) {
+                        writeLog("Erreur dans un abonné aux modifications: " + listener, Level.WARNING, e);
+                    }
+                }
+            }
+        }, "sqlite-cdc-dispatcher");
+        changeDispatcher.setDaemon(true);
+        changeDispatcher.start();
+        writeLog("Diffusion des modifications démarrée (capacité de la file: " + capacity + " lots)", Level.INFO);
+    }
+
+    /**
+     * Modifications accumulées par une connexion jusqu'au commit.
+     * Le nombre d'évènements conservés est borné : dès que la borne est atteinte, les évènements
+     * de la table concernée sont retirés et remplacés par un évènement OVERFLOW publié au commit.
+     */
+    private static class PendingChanges {
+        private final List<ChangeEvent> events = new ArrayList<>();
+        private final Set<String> overflowedTables = new LinkedHashSet<>();
+        // Suivi de la requête en cours, pour détecter les lignes modifiées sans passer par le hook
+        private final Set<String> statementTables = new LinkedHashSet<>();
+        private int statementRows;
+        private boolean replaceStatement;
+
+        void beginStatement(String query) {
+            statementTables.clear();
+            statementRows = 0;
+            replaceStatement = REPLACE_PATTERN.matcher(query).find();
+        }
+
+        void add(String table, Operation operation, long rowId) {
+            statementTables.add(table);
+            statementRows++;
+            if (replaceStatement) {
+                overflow(table);
+                return;
+            }
+            if (overflowedTables.contains(table)) {
+                return;
+            }
+            if (events.size() < maxEventsPerTransaction) {
+                events.add(new ChangeEvent(table, operation, rowId));
+                return;
+            }
+            overflow(table);
+        }
+
+        void overflow(String table) {
+            if (!overflowedTables.add(table)) {
+                return;
+            }
+            Iterator<ChangeEvent> iterator = events.iterator();
+            while (iterator.hasNext()) {
+                if (iterator.next().getTable().equals(table)) {
+                    iterator.remove();
+                }
+            }
+        }
+
+        boolean isEmpty() {
+            return events.isEmpty() && overflowedTables.isEmpty();
+        }
+
+        List<ChangeEvent> drain() {
+            List<ChangeEvent> batch = new ArrayList<>(events);
+            for (String table : overflowedTables) {
+                batch.add(new ChangeEvent(table, Operation.OVERFLOW, -1));
+            }
+            events.clear();
+            overflowedTables.clear();
+            return Collections.unmodifiableList(batch);
+        }
+
+        void clear() {
+            events.clear();
+            overflowedTables.clear();
+            statementTables.clear();
+            statementRows = 0;
+        }
+    }
+
+    /**
+     * Installe les hooks update/commit de SQLite sur la connexion si au moins un abonné existe.
+     * Les évènements sont accumulés jusqu'au commit puis publiés en un seul lot ;
+     * un rollback les abandonne.
+     * 
+     * @param conn La connexion sur laquelle installer les hooks
+     */
+    private static void attachChangeHooks(Connection conn) {
+        if (CHANGE_LISTENERS.isEmpty()) {
+            return;
+        }
+        try {
+            SQLiteConnection sqliteConnection = conn.unwrap(SQLiteConnection.class);
+            PendingChanges pending = new PendingChanges();
+            PENDING_CHANGES.put(conn, pending);
+
+            sqliteConnection.addUpdateListener((type, database, table, rowId) ->
+                    pending.add(table, toOperation(type), rowId));
+            sqliteConnection.addCommitListener(new SQLiteCommitListener() {
+                @Override
+                public void onCommit() {
+                    if (!pending.isEmpty()) {
+                        publishChanges(pending.drain());
+                    }
+                }
+
+                @Override
+                public void onRollback() {
+                    pending.clear();
+                }
+            });
+        } catch (SQLException e) {
+            writeLog("Impossible d'installer les hooks de capture des modifications", Level.WARNING, e);
+        }
+    }
+
+    /**
+     * Exécute une requête d'écriture et publie un évènement OVERFLOW pour la table si SQLite
+     * a modifié plus de lignes que les hooks n'en ont signalées (DELETE sans WHERE notamment).
+     * 
+     * @param connection La connexion ouverte par {@link #connect()}
+     * @param query La requête exécutée
+     * @param pstmt La requête préparée, paramètres déjà positionnés
+     * @return int le nombre de lignes modifiées
+     * @throws SQLException si l'exécution échoue
+     */
+    private static int executeTrackedUpdate(Connection connection, String query, PreparedStatement pstmt)
+            throws SQLException {
+        PendingChanges pending = PENDING_CHANGES.get(connection);
+        if (pending == null) {
+            return executeWithRetry(query, true, pstmt::executeUpdate);
+        }
+        pending.beginStatement(query);
+        int rowsAffected = executeWithRetry(query, true, pstmt::executeUpdate);
+        if (rowsAffected > pending.statementRows) {
+            Set<String> tables = new LinkedHashSet<>(pending.statementTables);
+            Matcher matcher = TARGET_TABLE_PATTERN.matcher(query);
+            if (matcher.find()) {
+                String name = matcher.group(1);
+                tables.add(name.substring(name.lastIndexOf('.') + 1).replaceAll("[\"`\\[\\]]", ""));
+            }
+            if (tables.isEmpty()) {
+                writeLog("Modifications non signalées par SQLite et table introuvable: " + query, Level.WARNING);
+            } else if (connection.getAutoCommit()) {
+                // Le commit implicite a déjà publié le lot de la requête
+                List<ChangeEvent> batch = new ArrayList<>();
+                for (String table : tables) {
+                    batch.add(new ChangeEvent(table, Operation.OVERFLOW, -1));
+                }
+                publishChanges(Collections.unmodifiableList(batch));
+            } else {
+                for (String table : tables) {
+                    pending.overflow(table);
+                }
+            }
+        }
+        return rowsAffected;
+    }
+
+    private static Operation toOperation(SQLiteUpdateListener.Type type) {
+        switch (type) {
+            case INSERT:
+                return Operation.INSERT;
+            case DELETE:
+                return Operation.DELETE;
+            default:
+                return Operation.UPDATE;
+        }
+    }
+
+    /**
+     * Publie un lot de modifications dans la file sans jamais bloquer l'appelant.
+     * 
+     * @param batch Le lot de modifications d'une transaction
+     */
+    private static void publishChanges(List<ChangeEvent> batch) {
+        if (!changeQueue.offer(batch)) {
+            long dropped = DROPPED_CHANGE_BATCHES.incrementAndGet();
+            writeLog("File des modifications pleine, lot de " + batch.size() +
+                    " évènement(s) abandonné (total abandonnés: " + dropped + ")", Level.WARNING);
+        }
+    }
+
+    /**
+     * Statistiques de contention de la dernière requête exécutée par le thread courant.
+     */
+    public static final class StatementStats {
+        private final String query;
+        private final int retries;
+        private final long waitMillis;
+        private final boolean succeeded;
+
+        public StatementStats(String query, int retries, long waitMillis, boolean succeeded) {
+            this.query = query;
+            this.retries = retries;
+            this.waitMillis = waitMillis;
+            this.succeeded = succeeded;
+        }
+
+        public String getQuery() {
+            return query;
+        }
+
+        public int getRetries() {
+            return retries;
+        }
+
+        public long getWaitMillis() {
+            return waitMillis;
+        }
+
+        public boolean isSucceeded() {
+            return succeeded;
+        }
+
+        @Override
+        public String toString() {
+            return "reprises=" + retries + ", attente=" + waitMillis + " ms, succès=" + succeeded;
+        }
+    }
+
+    /**
+     * Retourne les statistiques de contention de la dernière requête exécutée par le thread courant.
+     * 
+     * @return StatementStats les statistiques, null si aucune requête n'a été exécutée
+     * 
+     * @example
+     * SqliteManager.executeUpdate("UPDATE employees SET statut = ? WHERE id = ?", 0, 1);
+     * StatementStats stats = SqliteManager.getLastStatementStats();
+     */
+    public static StatementStats getLastStatementStats() {
+        return LAST_STATEMENT_STATS.get();
+    }
+
+    @FunctionalInterface
+    private interface SqlCall<T> {
+        T call() throws SQLException;
+    }
+
+    /**
+     * Indique si l'exception correspond à SQLITE_BUSY ou SQLITE_LOCKED (codes étendus compris).
+     */
+    private static boolean isBusy(SQLException e) {
+        int primaryCode = e.getErrorCode() & 0xFF;
+        return primaryCode == SQLITE_BUSY || primaryCode == SQLITE_LOCKED;
+    }
+
+    /**
+     * Exécute une requête en reprenant sur SQLITE_BUSY/SQLITE_LOCKED avec un backoff exponentiel
+     * à gigue, dans la limite de database.busy.maxRetries reprises et de database.busy.budgetMs au total.
+     * Le temps d'attente comptabilisé inclut l'admission, le backoff et le temps passé par chaque
+     * tentative échouée dans le busy handler de SQLite.
+     * Tant qu'une contention a été détectée récemment, les écritures passent par un limiteur
+     * d'admission (database.busy.writeConcurrency) qui les met en file au lieu de les laisser
+     * se heurter au verrou.
+     * 
+     * @param query La requête, pour la journalisation
+     * @param write true s'il s'agit d'une écriture soumise à l'admission
+     * @param call L'exécution de la requête
+     * @return T le résultat de l'exécution
+     * @throws SQLException l'erreur d'origine si elle n'est pas due à la contention ou si le budget est épuisé
+     */
+    private static <T> T executeWithRetry(String query, boolean write, SqlCall<T> call) throws SQLException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(busyBudgetMs);
+        int retries = 0;
+        long waitedNanos = 0;
+        boolean admitted = false;
+
+        ACTIVE_STATEMENTS.incrementAndGet();
+        FOREGROUND_STATEMENTS.incrementAndGet();
+        lastForegroundActivity = System.currentTimeMillis();
+        try {
+            while (true) {
+                if (write && !admitted && System.currentTimeMillis() < contentionUntil) {
+                    long admissionStart = System.nanoTime();
+                    admitted = acquireWritePermit(deadline);
+                    waitedNanos += System.nanoTime() - admissionStart;
+                    if (!admitted) {
+                        recordStatementStats(query, retries, waitedNanos, false);
+                        throw new SQLException("Admission de l'écriture refusée: budget de contention épuisé",
+                                null, SQLITE_BUSY);
+                    }
+                }
+                long attemptStart = System.nanoTime();
+                try {
+                    T result = call.call();
+                    recordStatementStats(query, retries, waitedNanos, true);
+                    return result;
+                } catch (SQLException e) {
+                    if (!isBusy(e)) {
+                        recordStatementStats(query, retries, waitedNanos, false);
+                        throw e;
+                    }
+                    // La tentative échouée a attendu dans le busy handler de SQLite (busy_timeout)
+                    waitedNanos += System.nanoTime() - attemptStart;
+                    contentionUntil = System.currentTimeMillis() + contentionWindowMs;
+
+                    int shift = Math.min(retries, 20);
+                    long cap = busyBaseDelayMs > (busyMaxDelayMs >> shift) ? busyMaxDelayMs : busyBaseDelayMs << shift;
+                    long delay = cap / 2 + ThreadLocalRandom.current().nextLong(cap / 2 + 1);
+                    // La prochaine tentative peut encore bloquer jusqu'à busy_timeout : elle doit tenir dans le budget
+                    if (retries >= busyMaxRetries
+                            || System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delay + busyTimeoutMs) > deadline) {
+                        recordStatementStats(query, retries, waitedNanos, false);
+                        throw e;
+                    }
+                    writeLog("Base verrouillée (code " + e.getErrorCode() + "), nouvelle tentative dans " +
+                            delay + " ms", Level.FINE);
+                    long sleepStart = System.nanoTime();
+                    try {
+                        Thread.sleep(delay);
+                    } catch (InterruptedException ie) {
+                        Thread.currentThread().interrupt();
+                        recordStatementStats(query, retries, waitedNanos + System.nanoTime() - sleepStart, false);
+                        throw e;
+                    }
+                    waitedNanos += System.nanoTime() - sleepStart;
+                    retries++;
+                }
+            }
+        } finally {
+            if (admitted) {
+                writePermits.release();
+            }
+            lastForegroundActivity = System.currentTimeMillis();
+            ACTIVE_STATEMENTS.decrementAndGet();
+        }
+    }
+
+    /**
+     * Attend un permis d'écriture jusqu'à l'échéance donnée.
+     * 
+     * @param deadline L'échéance en nanosecondes (System.nanoTime)
+     * @return boolean true si le permis a été obtenu
+     */
+    private static boolean acquireWritePermit(long deadline) {
+        try {
+            return writePermits.tryAcquire(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private static void recordStatementStats(String query, int retries, long waitedNanos, boolean succeeded) {
+        long waitMillis = TimeUnit.NANOSECONDS.toMillis(waitedNanos);
+        StatementStats stats = new StatementStats(query, retries, waitMillis, succeeded);
+        LAST_STATEMENT_STATS.set(stats);
+        if (retries > 0 || waitMillis > 0) {
+            writeLog("Contention sur la requête " + query + ": " + stats, succeeded ? Level.INFO : Level.WARNING);
+        }
+    }
+
+    /**
+     * Démarre la maintenance en arrière-plan (opt-in, ou database.maintenance.enabled=true).
+     * Toutes les database.maintenance.checkIntervalMs, si aucune requête n'a été exécutée depuis
+     * database.maintenance.idleMs et que la dernière tentative date de plus de
+     * database.maintenance.minIntervalMs, exécute ANALYZE table par table, incremental_vacuum par
+     * tranches puis un checkpoint du WAL. La maintenance s'interrompt entre deux étapes dès qu'une
+     * requête applicative est exécutée ; seule une passe ainsi interrompue est relancée avant
+     * la fin de l'intervalle, une passe en erreur attend l'intervalle complet.
+     * 
+     * @example
+     * SqliteManager.startMaintenance();
+     */
+    public static synchronized void startMaintenance() {
+        if (maintenanceScheduler != null) {
+            return;
+        }
+        maintenanceScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "sqlite-maintenance");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = Math.max(1, maintenanceCheckIntervalMs);
+        maintenanceScheduler.scheduleWithFixedDelay(SqliteManager::runMaintenanceIfIdle,
+                interval, interval, TimeUnit.MILLISECONDS);
+        writeLog("Maintenance en arrière-plan démarrée (inactivité requise: " + maintenanceIdleMs + " ms)", Level.INFO);
+    }
+
+    /**
+     * Arrête la maintenance en arrière-plan. Une maintenance en cours s'achève à la fin de son étape.
+     */
+    public static synchronized void stopMaintenance() {
+        if (maintenanceScheduler != null) {
+            maintenanceScheduler.shutdownNow();
+            maintenanceScheduler = null;
+            writeLog("Maintenance en arrière-plan arrêtée", Level.INFO);
+        }
+    }
+
+    /**
+     * Indique si la base est inactive : aucune requête en cours ni récente.
+     */
+    private static boolean isIdle() {
+        return ACTIVE_STATEMENTS.get() == 0
+                && System.currentTimeMillis() - lastForegroundActivity >= maintenanceIdleMs;
+    }
+
+    /**
+     * Indique si une requête applicative a été exécutée depuis le début de la maintenance.
+     * 
+     * @param statementsAtStart Le nombre de requêtes au début de la maintenance
+     */
+    private static boolean foregroundResumed(long statementsAtStart) {
+        return ACTIVE_STATEMENTS.get() > 0 || FOREGROUND_STATEMENTS.get() != statementsAtStart;
+    }
+
+    private static void runMaintenanceIfIdle() {
+        if (!isIdle() || System.currentTimeMillis() - lastMaintenanceRun < maintenanceMinIntervalMs) {
+            return;
+        }
+        MaintenanceOutcome outcome = MaintenanceOutcome.FAILED;
+        try {
+            outcome = runMaintenance();
+        } catch (RuntimeException e) {
+            // Une exception non rattrapée annulerait les exécutions suivantes du planificateur
+            writeLog("Erreur inattendue pendant la maintenance", Level.WARNING, e);
+        } finally {
+            if (outcome != MaintenanceOutcome.YIELDED) {
+                lastMaintenanceRun = System.currentTimeMillis();
+            }
+        }
+    }
+
+    /**
+     * Exécute immédiatement une passe de maintenance, sans attendre une période d'inactivité.
+     * La passe cède tout de même la place dès qu'une requête applicative est exécutée.
+     * 
+     * @return boolean true si la passe est allée jusqu'au bout, false si elle a été interrompue ou a échoué
+     * 
+     * @example
+     * boolean done = SqliteManager.runMaintenanceNow();
+     */
+    public static boolean runMaintenanceNow() {
+        return runMaintenance() == MaintenanceOutcome.COMPLETED;
+    }
+
+    private enum MaintenanceOutcome {
+        COMPLETED, YIELDED, FAILED
+    }
+
+    /**
+     * Exécute une passe de maintenance et journalise sa durée et les pages récupérées.
+     * La connexion utilisée n'attend pas les verrous (busy_timeout à 0) : en cas de contention,
+     * la maintenance cède immédiatement la place au trafic applicatif. Le checkpoint est fait
+     * en dernier pour reporter aussi les pages écrites dans le WAL par incremental_vacuum.
+     * 
+     * @return MaintenanceOutcome COMPLETED, YIELDED si le trafic applicatif l'a interrompue, FAILED en cas d'erreur
+     */
+    private static MaintenanceOutcome runMaintenance() {
+        synchronized (MAINTENANCE_LOCK) {
+            long start = System.nanoTime();
+            long statementsAtStart = FOREGROUND_STATEMENTS.get();
+            long freePagesBefore = -1;
+            long freePagesAfter = -1;
+            int analyzedTables = 0;
+            String checkpoint = "non exécuté";
+            MaintenanceOutcome outcome = MaintenanceOutcome.YIELDED;
+
+            try (Connection conn = DriverManager.getConnection(databaseUrl);
+                 Statement stmt = conn.createStatement()) {
+                // Le pilote attend 3000 ms par défaut : la maintenance ne doit jamais attendre un verrou
+                stmt.execute("PRAGMA busy_timeout = 0");
+                freePagesBefore = queryLong(stmt, "PRAGMA freelist_count");
+                freePagesAfter = freePagesBefore;
+
+                // Statistiques du planificateur : PRAGMA optimize ne voit que les requêtes de sa propre
+                // connexion, donc ANALYZE explicite, table par table pour pouvoir céder la place entre
+                // deux tables, et borné par analysis_limit car un ANALYZE ne peut pas être interrompu
+                if (maintenanceAnalysisLimit > 0) {
+                    stmt.execute("PRAGMA analysis_limit = " + maintenanceAnalysisLimit);
+                }
+                List<String> tables = new ArrayList<>();
+                try (ResultSet rs = stmt.executeQuery(
+                        "SELECT name FROM sqlite_master WHERE type = 'table' AND name NOT LIKE 'sqlite_%'"
+                                + " AND sql NOT LIKE 'CREATE VIRTUAL%'")) {
+                    while (rs.next()) {
+                        tables.add(rs.getString(1));
+                    }
+                }
+                for (String table : tables) {
+                    if (foregroundResumed(statementsAtStart)) {
+                        return outcome;
+                    }
+                    stmt.execute("ANALYZE \"" + table.replace("\"", "\"\"") + "\"");
+                    analyzedTables++;
+                }
+                if (foregroundResumed(statementsAtStart)) {
+                    return outcome;
+                }
+
+                // Libération des pages vides par tranches (base en auto_vacuum = INCREMENTAL).
+                // SQLite libère une page par step : executeUpdate exécute le pragma jusqu'au bout.
+                if (queryLong(stmt, "PRAGMA auto_vacuum") == 2) {
+                    while (freePagesAfter > 0 && !foregroundResumed(statementsAtStart)) {
+                        stmt.executeUpdate("PRAGMA incremental_vacuum(" + Math.max(1, maintenanceVacuumPages) + ")");
+                        long remaining = queryLong(stmt, "PRAGMA freelist_count");
+                        if (remaining >= freePagesAfter) {
+                            break;
+                        }
+                        freePagesAfter = remaining;
+                    }
+                }
+                if (foregroundResumed(statementsAtStart)) {
+                    return outcome;
+                }
+
+                // Checkpoint du WAL : PASSIVE, puis TRUNCATE si tout le journal a pu être reporté
+                int[] passive = checkpoint(stmt, "PASSIVE");
+                if (passive != null) {
+                    checkpoint = "PASSIVE " + passive[2] + "/" + passive[1] + " trame(s)";
+                    boolean fullyCheckpointed = passive[0] == 0 && passive[1] > 0 && passive[1] == passive[2];
+                    if (fullyCheckpointed && !foregroundResumed(statementsAtStart)) {
+                        int[] truncate = checkpoint(stmt, "TRUNCATE");
+                        checkpoint += truncate != null && truncate[0] == 0
+                                ? ", TRUNCATE"
+                                : ", TRUNCATE ignoré (base occupée)";
+                    }
+                }
+                if (!foregroundResumed(statementsAtStart)) {
+                    outcome = MaintenanceOutcome.COMPLETED;
+                }
+                return outcome;
+
+            } catch (SQLException e) {
+                if (isBusy(e)) {
+                    writeLog("Maintenance interrompue: base verrouillée par le trafic applicatif", Level.FINE);
+                } else {
+                    outcome = MaintenanceOutcome.FAILED;
+                    writeLog("Erreur pendant la maintenance: " + e.getMessage(), Level.WARNING, e);
+                }
+                return outcome;
+            } finally {
+                long durationMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+                long reclaimed = freePagesBefore >= 0 ? freePagesBefore - freePagesAfter : 0;
+                String status = outcome == MaintenanceOutcome.COMPLETED ? "terminée"
+                        : outcome == MaintenanceOutcome.YIELDED ? "interrompue" : "en échec";
+                writeLog("Maintenance " + status + " en " + durationMs + " ms" +
+                        ", tables analysées: " + analyzedTables +
+                        ", pages récupérées: " + reclaimed +
+                        ", checkpoint WAL: " + checkpoint, Level.INFO);
+            }
+        }
+    }
+
+    /**
+     * Exécute PRAGMA wal_checkpoint dans le mode donné.
+     * 
+     * @param stmt Le statement de la connexion de maintenance
+     * @param mode Le mode de checkpoint (PASSIVE, TRUNCATE...)
+     * @return int[] {busy, trames du WAL, trames reportées}, null si aucun résultat
+     * @throws SQLException si le checkpoint échoue
+     */
+    private static int[] checkpoint(Statement stmt, String mode) throws SQLException {
+        try (ResultSet rs = stmt.executeQuery("PRAGMA wal_checkpoint(" + mode + ")")) {
+            if (!rs.next()) {
+                return null;
+            }
+            return new int[] { rs.getInt(1), rs.getInt(2), rs.getInt(3) };
+        }
+    }
+
+    private static long queryLong(Statement stmt, String query) throws SQLException {
+        try (ResultSet rs = stmt.executeQuery(query)) {
+            return rs.next() ? rs.getLong(1) : 0;
+        }
+    }
 }
\ No newline at end of file